@@ -1,6 +1,25 @@
-import React, { useState, useRef } from "react";
+import React, { useState, useRef, useEffect } from "react";
 import ReactMarkdown from 'react-markdown';
 import { authFetch } from '../authFetch';
+import keycloak from '../keycloak';
+
+type ChatRequest = { id: string; controller: AbortController };
+
+const newRequestId = () => `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+
+// Aborts the chat request and cancels it on the server, which keeps working after the fetch is aborted.
+// Uses the current token without refreshing it, so the cancel also goes out while the page is closing.
+const cancelChatRequest = (requestRef: React.MutableRefObject<ChatRequest | null>) => {
+  const request = requestRef.current;
+  if (!request) return;
+  requestRef.current = null;
+  request.controller.abort();
+  fetch(`/llm/requests/${encodeURIComponent(request.id)}`, {
+    method: "DELETE",
+    headers: { Authorization: `Bearer ${keycloak.token}` },
+    keepalive: true,
+  }).catch(() => {});
+};
 
 // Loading dots component
 const LoadingDots = () => (
@@ -19,10 +38,26 @@ export default function LlmChat() {
   const [streaming, setStreaming] = useState(false);
   const [loading, setLoading] = useState(false);
   const streamRef = useRef<EventSource | null>(null);
+  const chatRequestRef = useRef<ChatRequest | null>(null);
+
+  // Cancel the running chat when the page is closed or the component goes away
+  useEffect(() => {
+    const handlePageHide = () => cancelChatRequest(chatRequestRef);
+    window.addEventListener("pagehide", handlePageHide);
+    return () => {
+      window.removeEventListener("pagehide", handlePageHide);
+      cancelChatRequest(chatRequestRef);
+    };
+  }, []);
 
   const handleChat = async () => {
     if (!prompt.trim()) return;
-    
+
+    // A new query replaces the one still running
+    cancelChatRequest(chatRequestRef);
+    const request = { id: newRequestId(), controller: new AbortController() };
+    chatRequestRef.current = request;
+
     setLoading(true);
     setStreaming(false);
     setResponse("");
@@ -33,20 +68,31 @@ export default function LlmChat() {
 
         {
           method: "POST",
-          headers: { "Content-Type": "application/json" },
+          headers: { "Content-Type": "application/json", "X-Request-Id": request.id },
           body: JSON.stringify(history),
+          signal: request.controller.signal,
         }
       );
       const responseText = await res.text();
       setResponse(responseText);
       setHistory([...history, prompt]);
     } catch (error) {
-      setResponse("Error: Failed to get response from the server.");
+      if (!request.controller.signal.aborted) {
+        setResponse("Error: Failed to get response from the server.");
+      }
     } finally {
+      if (chatRequestRef.current === request) {
+        chatRequestRef.current = null;
+      }
       setLoading(false);
     }
   };
 
+  const handleStop = () => {
+    cancelChatRequest(chatRequestRef);
+    setLoading(false);
+  };
+
   const handleStream = async () => {
     if (!prompt.trim()) return;
     setStreaming(true);
@@ -116,6 +162,14 @@ export default function LlmChat() {
             "Send (Non-Streaming)"
           )}
         </button>
+        {loading && !streaming && (
+          <button
+            className="px-4 py-2 text-white rounded mr-2 bg-red-600 hover:bg-red-700"
+            onClick={handleStop}
+          >
+            Stop
+          </button>
+        )}
         <button
           className={`px-4 py-2 text-white rounded ${
             streaming ? 'bg-gray-400 cursor-not-allowed' : 'bg-green-600 hover:bg-green-700'
@@ -1,4 +1,4 @@
-import React, { useState } from "react";
+import React, { useState, useEffect, useRef } from "react";
 import ReactMarkdown from 'react-markdown';
 import { authFetch } from '../authFetch';
 
@@ -6,10 +6,60 @@ export default function SemanticSearch() {
   const [query, setQuery] = useState("");
   const [results, setResults] = useState<any[]>([]);
   const [isLoading, setIsLoading] = useState(false);
+  const incrementalRef = useRef<AbortController | null>(null);
+
+  // Search as you type: the server debounces, supersedes earlier queries and sends "seed" then "results" events
+  const runIncrementalSearch = async (text: string) => {
+    incrementalRef.current?.abort();
+    if (text.trim().length < 3) return;
+
+    const controller = new AbortController();
+    incrementalRef.current = controller;
+    try {
+      const res = await authFetch(
+        `/llm/search/incremental?text=${encodeURIComponent(text)}`,
+        { signal: controller.signal }
+      );
+      if (!res.body) return;
+      const reader = res.body.getReader();
+      const decoder = new TextDecoder();
+      let buffer = "";
+      while (true) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+        let boundary;
+        while ((boundary = buffer.indexOf("\n\n")) >= 0) {
+          const event = buffer.slice(0, boundary);
+          buffer = buffer.slice(boundary + 2);
+          const data = event
+            .split("\n")
+            .filter(line => line.startsWith("data:"))
+            .map(line => line.slice(5))
+            .join("\n");
+          if (data) {
+            const items = JSON.parse(data);
+            if (Array.isArray(items)) setResults(items);
+          }
+        }
+      }
+    } catch (error) {
+      if ((error as Error).name !== 'AbortError') {
+        console.error('Incremental search failed:', error);
+      }
+    }
+  };
+
+  useEffect(() => {
+    const timer = setTimeout(() => runIncrementalSearch(query), 100);
+    return () => clearTimeout(timer);
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [query]);
 
   const handleSearch = async () => {
     if (!query.trim()) return;
     
+    incrementalRef.current?.abort();
     setIsLoading(true);
     try {
       const res = await authFetch(
@@ -2,8 +2,10 @@ package net.konjarla.ai.mcpclient;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class McpclientApplication {
 
 	public static void main(String[] args) {
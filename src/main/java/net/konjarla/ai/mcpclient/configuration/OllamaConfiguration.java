@@ -1,6 +1,9 @@
 package net.konjarla.ai.mcpclient.configuration;
 
 import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.embedding.CachingEmbeddingModel;
+import net.konjarla.ai.mcpclient.llm.embedding.MappedEmbeddingStore;
 import net.konjarla.ai.mcpclient.transport.RestClientInterceptor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.model.ChatModel;
@@ -22,9 +25,12 @@ import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 
 @Configuration
+@Slf4j
 public class OllamaConfiguration {
     @Value("${ollama.host}")
     private String ollamaHost;
@@ -41,6 +47,21 @@ public class OllamaConfiguration {
     @Value("${ollama.chat.options.temperature}")
     private Double ollamaChatTemperature;
 
+    @Value("${ollama.chat.options.keep-alive}")
+    private String ollamaKeepAlive;
+
+    @Value("${embedding.cache.enabled:false}")
+    private boolean embeddingCacheEnabled;
+
+    @Value("${embedding.cache.dir}")
+    private Path embeddingCacheDir;
+
+    @Value("${embedding.cache.dimensions}")
+    private Integer embeddingCacheDimensions;
+
+    @Value("${embedding.cache.max-entries}")
+    private Integer embeddingCacheMaxEntries;
+
     @Bean
     public OllamaApi ollamaApi() {
         RestClient.Builder builder = RestClient.builder();
@@ -68,6 +89,7 @@ public class OllamaConfiguration {
                                 .model(ollamaChatModel)
                                 .numCtx(numCtx)
                                 .temperature(ollamaChatTemperature)
+                                .keepAlive(ollamaKeepAlive)
                                 .build())
                 .build();
     }
@@ -79,10 +101,21 @@ public class OllamaConfiguration {
                 .pullModelStrategy(PullModelStrategy.WHEN_MISSING)
                 .build();
 
-        return new OllamaEmbeddingModel(ollamaApi(),
+        OllamaEmbeddingModel ollamaEmbeddingModel = new OllamaEmbeddingModel(ollamaApi(),
                 OllamaOptions.builder()
                         .model(OllamaModel.MXBAI_EMBED_LARGE.id())
                         .build(), observationRegistry, modelManagementOptions);
+        if (!embeddingCacheEnabled) {
+            return ollamaEmbeddingModel;
+        }
+        try {
+            return new CachingEmbeddingModel(ollamaEmbeddingModel, OllamaModel.MXBAI_EMBED_LARGE.id(),
+                    new MappedEmbeddingStore(embeddingCacheDir, embeddingCacheDimensions, embeddingCacheMaxEntries));
+        } catch (IOException e) {
+            // The cache is an optimization, an unwritable cache directory should not stop the application
+            log.warn("Could not open embedding cache in {}, embeddings are not cached", embeddingCacheDir, e);
+            return ollamaEmbeddingModel;
+        }
     }
 
     @Bean
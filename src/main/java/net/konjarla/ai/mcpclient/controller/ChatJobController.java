@@ -0,0 +1,111 @@
+package net.konjarla.ai.mcpclient.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.job.ChatJobService;
+import net.konjarla.ai.mcpclient.llm.model.ChatJob;
+import net.konjarla.ai.mcpclient.security.CallerIdentityResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequestMapping("/llm/jobs")
+@Slf4j
+@RequiredArgsConstructor
+@CrossOrigin("*")
+public class ChatJobController {
+    // Well under the load balancer idle timeout
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    @NonNull
+    private ChatJobService chatJobService;
+
+    @NonNull
+    private CallerIdentityResolver callerIdentityResolver;
+
+    // Jobs run for minutes, so the event stream does not use spring.mvc.async.request-timeout
+    @Value("${llm.jobs.events-timeout:60m}")
+    private Duration eventsTimeout;
+
+    // Starts a tool chat in the background and returns the job with its id
+    @PostMapping
+    public ResponseEntity<ChatJob> submit(
+            @RequestParam String prompt,
+            @RequestParam(required = false) String systemPrompt,
+            @RequestBody(required = false) List<String> history,
+            HttpServletRequest request
+    ) {
+        String owner = getOwner(request);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(chatJobService.submit(owner, callerIdentityResolver.getBearerToken(request),
+                            prompt, systemPrompt, history));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ChatJob> get(@PathVariable String id, HttpServletRequest request) {
+        return ResponseEntity.of(chatJobService.find(getOwner(request), id));
+    }
+
+    // Sends the job on every status change until it is done, with heartbeat comments in between
+    @GetMapping(value = "/{id}/events", produces = "text/event-stream")
+    public SseEmitter events(@PathVariable String id, HttpServletRequest request) {
+        String owner = getOwner(request);
+        if (chatJobService.find(owner, id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        SseEmitter emitter = new SseEmitter(eventsTimeout.toMillis());
+        Disposable subscription = chatJobService.updates(owner, id).publish(updates -> Flux.merge(
+                        updates.map(job -> SseEmitter.event()
+                                .name(job.getStatus().name().toLowerCase())
+                                .data(job)),
+                        Flux.interval(HEARTBEAT_INTERVAL)
+                                .map(tick -> SseEmitter.event().comment("heartbeat"))
+                                .takeUntilOther(updates.then(Mono.just(Boolean.TRUE)))))
+                .subscribe(event -> {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, emitter::completeWithError, emitter::complete);
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        return emitter;
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id, HttpServletRequest request) {
+        return chatJobService.cancel(getOwner(request), id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // Jobs run with the caller's token and belong to them, so they need a verified identity
+    private String getOwner(HttpServletRequest request) {
+        String owner = callerIdentityResolver.getSubject(request);
+        if (owner == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Chat jobs require a bearer token");
+        }
+        return owner;
+    }
+}
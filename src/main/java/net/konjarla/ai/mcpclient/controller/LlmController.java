@@ -2,23 +2,36 @@ package net.konjarla.ai.mcpclient.controller;
 
 import io.modelcontextprotocol.client.McpSyncClient;
 import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.konjarla.ai.mcpclient.llm.LlmService;
+import net.konjarla.ai.mcpclient.llm.model.ChatStreamEvent;
 import net.konjarla.ai.mcpclient.llm.model.VectorItem;
+import net.konjarla.ai.mcpclient.llm.request.LlmRequestRegistry;
+import net.konjarla.ai.mcpclient.llm.search.IncrementalSearchService;
+import net.konjarla.ai.mcpclient.security.CallerIdentityResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/llm")
 @Slf4j
 @RequiredArgsConstructor
-@CrossOrigin("*")
+@CrossOrigin(origins = "*", exposedHeaders = "X-Request-Id")
 public class LlmController {
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
 
     @NonNull
     private LlmService llmService;
@@ -26,14 +39,28 @@ public class LlmController {
     @NonNull
     private List<McpSyncClient> mcpSyncClients;
 
+    @NonNull
+    private LlmRequestRegistry llmRequestRegistry;
+
+    @NonNull
+    private IncrementalSearchService incrementalSearchService;
+
+    @NonNull
+    private CallerIdentityResolver callerIdentityResolver;
+
     // Non-streaming endpoint
     @PostMapping("/chat")
-    public String chat(
+    public Mono<String> chat(
             @RequestParam String prompt,
             @RequestParam(required = false) String systemPrompt,
-            @RequestBody(required = false) List<String> history
+            @RequestBody(required = false) List<String> history,
+            @RequestHeader(value = REQUEST_ID_HEADER, required = false) String requestId,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
-        return llmService.toolChat(prompt, systemPrompt, history);
+        String owner = callerIdentityResolver.getSubject(request);
+        return llmRequestRegistry.track(owner, getRequestId(owner, requestId, response),
+                llmService.toolChatAsync(prompt, systemPrompt, history));
         // return llmService.chat(prompt, systemPrompt, history);
     }
 
@@ -42,9 +69,42 @@ public class LlmController {
     public Flux<String> chatStream(
             @RequestParam String prompt,
             @RequestParam(required = false) String systemPrompt,
-            @RequestBody(required = false) List<String> history
+            @RequestBody(required = false) List<String> history,
+            @RequestHeader(value = REQUEST_ID_HEADER, required = false) String requestId,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) {
+        String owner = callerIdentityResolver.getSubject(request);
+        return llmRequestRegistry.track(owner, getRequestId(owner, requestId, response),
+                llmService.chatStream(prompt, systemPrompt, history));
+    }
+
+    // Streaming endpoint with tools, progress events are sent as "progress" and "tool" events
+    @PostMapping(value = "/chat/tools/stream", produces = "text/event-stream")
+    public Flux<ServerSentEvent<String>> toolChatStream(
+            @RequestParam String prompt,
+            @RequestParam(required = false) String systemPrompt,
+            @RequestBody(required = false) List<String> history,
+            @RequestHeader(value = REQUEST_ID_HEADER, required = false) String requestId,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
-        return llmService.chatStream(prompt, systemPrompt, history);
+        String owner = callerIdentityResolver.getSubject(request);
+        return llmRequestRegistry.track(owner, getRequestId(owner, requestId, response),
+                        llmService.toolChatStream(prompt, systemPrompt, history))
+                .map(event -> event.getType() == ChatStreamEvent.Type.TOKEN
+                        ? ServerSentEvent.builder(event.getContent()).build()
+                        : ServerSentEvent.builder(event.getContent())
+                                .event(event.getType().name().toLowerCase())
+                                .build());
+    }
+
+    // Cancels an in-flight chat request of the caller, the id is sent back in the X-Request-Id response header
+    @DeleteMapping("/requests/{id}")
+    public ResponseEntity<Void> cancelRequest(@PathVariable String id, HttpServletRequest request) {
+        return llmRequestRegistry.cancel(callerIdentityResolver.getSubject(request), id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
     }
 
     @GetMapping("/search/similar")
@@ -52,6 +112,23 @@ public class LlmController {
         return llmService.vectorChat(query);
     }
 
+    // Search-as-you-type, sends "seed" results from an earlier prefix of the query followed by "results"
+    @GetMapping(value = "/search/incremental", produces = "text/event-stream")
+    public Flux<ServerSentEvent<List<VectorItem>>> incrementalSearch(
+            @RequestParam(value = "text") String query,
+            HttpServletRequest request
+    ) {
+        // Search state is kept per user, so it needs a verified identity
+        String subject = callerIdentityResolver.getSubject(request);
+        if (subject == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Incremental search requires a bearer token");
+        }
+        return incrementalSearchService.search(subject, query)
+                .map(event -> ServerSentEvent.builder(event.getResults())
+                        .event(event.getType().name().toLowerCase())
+                        .build());
+    }
+
     @GetMapping("/tools")
     public List<McpSchema.Tool> tools() {
         if(!mcpSyncClients.isEmpty()) {
@@ -94,4 +171,13 @@ public class LlmController {
         }
         return "";
     }
-} 
\ No newline at end of file
+
+    // Anonymous callers share one owner, so they always get a random id that only they know
+    private String getRequestId(String owner, String requestId, HttpServletResponse response) {
+        if (owner == null || requestId == null || requestId.isBlank()) {
+            requestId = UUID.randomUUID().toString();
+        }
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        return requestId;
+    }
+}
@@ -7,24 +7,45 @@ import io.modelcontextprotocol.spec.McpSchema;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.model.ChatStreamEvent;
+import net.konjarla.ai.mcpclient.llm.model.VectorIdResults;
 import net.konjarla.ai.mcpclient.llm.model.VectorItem;
+import net.konjarla.ai.mcpclient.llm.prompt.StablePromptProvider;
+import net.konjarla.ai.mcpclient.llm.tool.ProgressReportingToolCallback;
+import net.konjarla.ai.mcpclient.llm.tool.ResultCapturingToolCallback;
+import net.konjarla.ai.mcpclient.util.RequestContextUtil;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -47,13 +68,133 @@ public class LlmService {
     private Resource vectorQueryTemplate;
     @NonNull
     ObjectMapper objectMapper;
+    @NonNull
+    StablePromptProvider stablePromptProvider;
+    @NonNull
+    VectorItemHydrator vectorItemHydrator;
+    @NonNull
+    LlmUsageMetrics llmUsageMetrics;
+
+    @Value("${prompt.prefix.stable:false}")
+    private boolean prefixStable;
+    @Value("${vector.chat.ids.only:false}")
+    private boolean idsOnly;
     // Map<String, String> promptMessages = new java.util.HashMap<>();
 
     // Non-streaming chat with system prompt and history
     public String toolChat(String prompt, String systemPrompt, List<String> history) {
+        try {
+            return toolChatOrThrow(prompt, systemPrompt, history);
+        } catch (Exception e) {
+            log.error("Error in tool chat", e);
+            return "Error in tool chat";
+        }
+    }
+
+    // Same as toolChat, but errors are thrown to the caller instead of being returned as the answer
+    public String toolChatOrThrow(String prompt, String systemPrompt, List<String> history) {
+        Prompt chatPrompt = new Prompt(getToolChatMessages(prompt, systemPrompt, history));
+        ToolCallback[] toolCallbacks = getToolCallbacks();
+        ChatResponse chatResponse = openAiChatClient.prompt(chatPrompt)
+                .toolCallbacks(toolCallbacks)
+                .call()
+                .chatResponse();
+        assert chatResponse != null;
+        llmUsageMetrics.record("tool_chat", chatResponse);
+        String response = chatResponse.getResult().getOutput().getText();
+        assert response != null;
+        return response;
+    }
+
+    // Non-streaming chat run off the servlet thread, cancelling the subscription interrupts the model and tool calls
+    public Mono<String> toolChatAsync(String prompt, String systemPrompt, List<String> history) {
+        return RequestContextUtil.fromCallable(() -> {
+            try {
+                return toolChatOrThrow(prompt, systemPrompt, history);
+            } catch (Exception e) {
+                if (isInterruption(e)) {
+                    // Nobody is waiting for the answer of a cancelled chat
+                    log.debug("Tool chat cancelled: {}", e.toString());
+                    return null;
+                }
+                log.error("Error in tool chat", e);
+                return "Error in tool chat";
+            }
+        });
+    }
+
+    private boolean isInterruption(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException
+                    || cause instanceof ClosedByInterruptException || cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Streaming chat with tools, emits progress events during tool calls followed by answer tokens or an error
+    public Flux<ChatStreamEvent> toolChatStream(String prompt, String systemPrompt, List<String> history) {
+        // Resolve the system prompt on the calling thread so MCP requests carry the user's token
+        Prompt chatPrompt = new Prompt(getToolChatMessages(prompt, systemPrompt, history));
+        // Tool calls run on a Reactor thread, they get the request bound again by the tool callback
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return Flux.defer(() -> {
+            Sinks.Many<ChatStreamEvent> progress = Sinks.many().unicast().onBackpressureBuffer();
+            Consumer<ChatStreamEvent> listener = event ->
+                    progress.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            ToolCallback[] toolCallbacks = Arrays.stream(getToolCallbacks())
+                    .map(toolCallback -> new ProgressReportingToolCallback(toolCallback, listener, requestAttributes))
+                    .toArray(ToolCallback[]::new);
+
+            // Usage is only streamed when requested, and is accumulated over the tool call rounds,
+            // so only the last reported usage is recorded
+            AtomicReference<ChatResponse> lastUsage = new AtomicReference<>();
+            Flux<ChatStreamEvent> tokens = openAiChatClient.prompt(chatPrompt)
+                    .options(OpenAiChatOptions.builder().streamUsage(true).build())
+                    .toolCallbacks(toolCallbacks)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(chatResponse -> {
+                        if (llmUsageMetrics.hasUsage(chatResponse)) {
+                            lastUsage.set(chatResponse);
+                        }
+                    })
+                    .doOnComplete(() -> llmUsageMetrics.record("tool_chat_stream", lastUsage.get()))
+                    .mapNotNull(chatResponse -> chatResponse.getResult() != null
+                            ? chatResponse.getResult().getOutput().getText()
+                            : null)
+                    .filter(text -> !text.isEmpty())
+                    .map(text -> ChatStreamEvent.builder()
+                            .type(ChatStreamEvent.Type.TOKEN)
+                            .content(text)
+                            .build())
+                    .doFinally(signal -> progress.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100))));
+
+            return Flux.merge(progress.asFlux(), tokens)
+                    .startWith(ChatStreamEvent.builder()
+                            .type(ChatStreamEvent.Type.PROGRESS)
+                            .content("Thinking...")
+                            .build());
+        }).onErrorResume(e -> {
+            log.error("Error in tool chat stream", e);
+            return Flux.just(ChatStreamEvent.builder()
+                    .type(ChatStreamEvent.Type.ERROR)
+                    .content("Error in tool chat")
+                    .build());
+        });
+    }
+
+    private List<Message> getToolChatMessages(String prompt, String systemPrompt, List<String> history) {
         List<Message> messages = new ArrayList<>();
         if (systemPrompt != null && !systemPrompt.isEmpty()) {
             messages.add(new SystemMessage(systemPrompt));
+        } else if (prefixStable) {
+            // Static system prompt first, per-request content last, so the prompt prefix can be cached
+            messages.add(new SystemMessage(stablePromptProvider.getFileAssistantSystemPrompt()));
         } else {
             Map<String, String> promptMessages = getPromptMessagesForChat(prompt);
             if (!promptMessages.isEmpty()) {
@@ -72,25 +213,26 @@ public class LlmService {
         }
 
         messages.add(new UserMessage(prompt));
-        Prompt chatPrompt = new Prompt(messages);
+        return messages;
+    }
+
+    private ToolCallback[] getToolCallbacks() {
         ToolCallback[] toolCallbacks = toolCallbackProvider.getToolCallbacks();
-        try {
-            String response = openAiChatClient.prompt(chatPrompt)
-                    .toolCallbacks(toolCallbacks)
-                    .call()
-                    .content();
-            assert response != null;
-            return response;
-        } catch (Exception e) {
-            log.error("Error in tool chat", e);
-            return "Error in tool chat";
-        }
+        return prefixStable ? stablePromptProvider.canonicalOrder(toolCallbacks) : toolCallbacks;
     }
 
     public List<VectorItem> vectorChat(String query) {
+        if (idsOnly) {
+            try {
+                return vectorChatIdsOnly(getVectorSearchUserPrompt(query));
+            } catch (Exception e) {
+                log.warn("Error in ids-only vector chat, falling back to formatted results", e);
+            }
+        }
         // PromptTemplate promptTemplate = new PromptTemplate(vectorQueryTemplate);
         // Message message = promptTemplate.createMessage(Map.of("query", query));
-        Map<String, String> promptMessages = getPromptMessagesForVectorSearch(query);
+        // In prefix-stable mode the system prompt comes from the StablePromptProvider, so it is not rendered here
+        Map<String, String> promptMessages = getPromptMessagesForVectorSearch(query, !prefixStable);
         String systemPrompt;
         String userPrompt;
         if (!promptMessages.isEmpty()) {
@@ -119,16 +261,23 @@ public class LlmService {
             Message message = promptTemplate.createMessage(Map.of("query", query));
             userPrompt = message.toString();
         }
+        if (prefixStable) {
+            log.debug("Using static system prompt for prefix caching");
+            systemPrompt = stablePromptProvider.getResultFormatSystemPrompt();
+        }
         //String systemPrompt = promptMessages.getOrDefault("system-message", formatSystemPrompt.toString());
         String message = promptMessages.getOrDefault("user-message", query);
         Prompt chatPrompt = new Prompt(message);
         try {
-            String response = openAiChatClient.prompt(userPrompt)
+            ChatResponse chatResponse = openAiChatClient.prompt(userPrompt)
                     //.system(formatSystemPrompt)
                     .system(systemPrompt)
-                    .toolCallbacks(toolCallbackProvider)
+                    .toolCallbacks(getToolCallbacks())
                     .call()
-                    .content();
+                    .chatResponse();
+            assert chatResponse != null;
+            llmUsageMetrics.record("vector_chat", chatResponse);
+            String response = chatResponse.getResult().getOutput().getText();
             assert response != null;
             List<VectorItem> results = objectMapper.readValue(response,
                     new TypeReference<>() {
@@ -142,6 +291,47 @@ public class LlmService {
         }
     }
 
+    // The model only returns the ids of the relevant results, filename and text come from the captured tool results
+    private List<VectorItem> vectorChatIdsOnly(String userPrompt) throws Exception {
+        List<String> toolResults = new CopyOnWriteArrayList<>();
+        ToolCallback[] toolCallbacks = Arrays.stream(getToolCallbacks())
+                .map(toolCallback -> new ResultCapturingToolCallback(toolCallback, toolResults::add))
+                .toArray(ToolCallback[]::new);
+        OpenAiChatOptions options = OpenAiChatOptions.builder()
+                .responseFormat(ResponseFormat.builder()
+                        .type(ResponseFormat.Type.JSON_SCHEMA)
+                        .jsonSchema(VectorIdResults.JSON_SCHEMA)
+                        .build())
+                .build();
+        ChatResponse chatResponse = openAiChatClient.prompt(userPrompt)
+                .system(stablePromptProvider.getResultIdsSystemPrompt())
+                .options(options)
+                .toolCallbacks(toolCallbacks)
+                .call()
+                .chatResponse();
+        assert chatResponse != null;
+        llmUsageMetrics.record("vector_chat_ids", chatResponse);
+        String response = chatResponse.getResult().getOutput().getText();
+        assert response != null;
+        VectorIdResults idResults = objectMapper.readValue(response, VectorIdResults.class);
+        if (idResults.getIds() == null) {
+            return List.of();
+        }
+        return vectorItemHydrator.hydrate(idResults.getIds(), toolResults);
+    }
+
+    // Only renders the MCP user prompt, the ids-only system prompt is static
+    private String getVectorSearchUserPrompt(String query) {
+        String userPrompt = getPromptMessagesForVectorSearch(query, false).get("user-message");
+        if (userPrompt != null) {
+            log.debug("Using custom user prompt from MCP: {}", userPrompt);
+            return userPrompt;
+        }
+        log.debug("Using default user prompt: {}", query);
+        PromptTemplate promptTemplate = new PromptTemplate(vectorQueryTemplate);
+        return promptTemplate.createMessage(Map.of("query", query)).toString();
+    }
+
     // Streaming chat with system prompt and history
     public Flux<String> chatStream(String prompt, String systemPrompt, List<String> history) {
         List<Message> messages = new ArrayList<>();
@@ -162,7 +352,7 @@ public class LlmService {
         });
     }
 
-    private Map<String, String> getPromptMessagesForVectorSearch(String query) {
+    private Map<String, String> getPromptMessagesForVectorSearch(String query, boolean includeSystemPrompt) {
         McpSyncClient mcpSyncClient = mcpSyncClients.get(0);
         if (mcpSyncClient != null) {
             List<McpSchema.Prompt> prompts = mcpSyncClient.listPrompts().prompts();
@@ -173,7 +363,7 @@ public class LlmService {
                     if(promptName.equals("vector-search-query-template")) {
                         String value = getPromptMessage(mcpSyncClient, prompt, query);
                         result.put("user-message", value);
-                    } else if(promptName.equals("vector-search-result-format-system-prompt")) {
+                    } else if(includeSystemPrompt && promptName.equals("vector-search-result-format-system-prompt")) {
                         String value = getPromptMessage(mcpSyncClient, prompt, query);
                         result.put("system-message", value);
                     }
@@ -0,0 +1,62 @@
+package net.konjarla.ai.mcpclient.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the token usage reported by the provider as the {@code llm.tokens} counter, tagged with the
+ * operation and the token {@code type} ({@code prompt}, {@code cached}, {@code completion}). Cached tokens
+ * are read from the OpenAI-compatible {@code prompt_tokens_details}, Ollama does not report them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LlmUsageMetrics {
+    private static final String TOKENS_METRIC = "llm.tokens";
+
+    @NonNull
+    private MeterRegistry meterRegistry;
+
+    public void record(String operation, ChatResponse chatResponse) {
+        if (!hasUsage(chatResponse)) {
+            return;
+        }
+        Usage usage = chatResponse.getMetadata().getUsage();
+        Integer cachedTokens = getCachedTokens(usage);
+        log.debug("{} usage: model={}, promptTokens={}, cachedTokens={}, completionTokens={}",
+                operation, chatResponse.getMetadata().getModel(), usage.getPromptTokens(),
+                cachedTokens, usage.getCompletionTokens());
+        count(operation, "prompt", usage.getPromptTokens());
+        count(operation, "cached", cachedTokens);
+        count(operation, "completion", usage.getCompletionTokens());
+    }
+
+    // Streamed responses only carry usage in the last chunk of each model call
+    public boolean hasUsage(ChatResponse chatResponse) {
+        if (chatResponse == null || chatResponse.getMetadata() == null) {
+            return false;
+        }
+        Usage usage = chatResponse.getMetadata().getUsage();
+        return usage != null && usage.getPromptTokens() != null && usage.getPromptTokens() > 0;
+    }
+
+    private void count(String operation, String type, Integer tokens) {
+        if (tokens != null) {
+            meterRegistry.counter(TOKENS_METRIC, "operation", operation, "type", type).increment(tokens);
+        }
+    }
+
+    private Integer getCachedTokens(Usage usage) {
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                && openAiUsage.promptTokensDetails() != null) {
+            return openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return null;
+    }
+}
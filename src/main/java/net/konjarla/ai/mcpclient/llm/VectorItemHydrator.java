@@ -0,0 +1,93 @@
+package net.konjarla.ai.mcpclient.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.model.VectorItem;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds {@link VectorItem}s from the raw MCP search tool results, so the model only has to return the
+ * ids of the relevant results instead of re-emitting their text.
+ * <p>
+ * A tool result, as returned by {@code SyncMcpToolCallback}, is the JSON array of the MCP content of the
+ * call. Its text content holds the search results, a JSON array of documents:
+ * <pre>
+ * [{"type": "text", "text": "[{\"id\": \"...\", \"text\": \"...\", \"metadata\": {\"filename\": \"...\"}}]"}]
+ * </pre>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorItemHydrator {
+    @NonNull
+    private ObjectMapper objectMapper;
+
+    public List<VectorItem> hydrate(List<String> ids, List<String> toolResults) {
+        Map<String, VectorItem> items = extractItems(toolResults);
+        List<VectorItem> results = new ArrayList<>();
+        for (String id : ids) {
+            VectorItem item = items.get(id);
+            if (item != null) {
+                results.add(item);
+            } else {
+                log.debug("Ignoring id {} not found in tool results", id);
+            }
+        }
+        return results;
+    }
+
+    // Items of SyncMcpToolCallback results in the order they appear, keyed by id
+    public Map<String, VectorItem> extractItems(List<String> toolResults) {
+        List<String> searchResults = new ArrayList<>();
+        for (String toolResult : toolResults) {
+            for (JsonNode content : readArray(toolResult)) {
+                if ("text".equals(content.path("type").asText())) {
+                    searchResults.add(content.path("text").asText());
+                }
+            }
+        }
+        return extractSearchResults(searchResults);
+    }
+
+    // Items of the text content of search tool calls in the order they appear, keyed by id
+    public Map<String, VectorItem> extractSearchResults(List<String> searchResults) {
+        Map<String, VectorItem> items = new LinkedHashMap<>();
+        for (String searchResult : searchResults) {
+            for (JsonNode document : readArray(searchResult)) {
+                String id = document.path("id").asText(null);
+                if (id == null) {
+                    continue;
+                }
+                String filename = document.has("filename")
+                        ? document.path("filename").asText(null)
+                        : document.path("metadata").path("filename").asText(null);
+                items.putIfAbsent(id, VectorItem.builder()
+                        .id(id)
+                        .filename(filename)
+                        .text(document.path("text").asText(null))
+                        .build());
+            }
+        }
+        return items;
+    }
+
+    private JsonNode readArray(String json) {
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            if (node != null && node.isArray()) {
+                return node;
+            }
+        } catch (Exception e) {
+            log.debug("Tool result is not JSON: {}", json);
+        }
+        return objectMapper.createArrayNode();
+    }
+}
@@ -0,0 +1,103 @@
+package net.konjarla.ai.mcpclient.llm.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link EmbeddingModel} decorator that looks up every text in a {@link MappedEmbeddingStore} first and only
+ * sends the misses of a batch to the delegate. Cache failures are logged and fall back to the delegate.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final String defaultModel;
+    private final MappedEmbeddingStore store;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String defaultModel, MappedEmbeddingStore store) {
+        this.delegate = delegate;
+        this.defaultModel = defaultModel;
+        this.store = store;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel()
+                : defaultModel;
+        List<MappedEmbeddingStore.Key> keys = texts.stream()
+                .map(text -> MappedEmbeddingStore.Key.of(model, text))
+                .toList();
+
+        List<float[]> vectors;
+        try {
+            vectors = new ArrayList<>(store.getAll(keys));
+        } catch (Exception e) {
+            log.warn("Embedding cache lookup failed", e);
+            return delegate.call(request);
+        }
+
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (vectors.get(i) == null) {
+                misses.add(i);
+            }
+        }
+        log.debug("Embedding cache: {} hits, {} misses", texts.size() - misses.size(), misses.size());
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!misses.isEmpty()) {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(
+                    misses.stream().map(texts::get).toList(), request.getOptions()));
+            List<MappedEmbeddingStore.Key> missKeys = new ArrayList<>();
+            List<float[]> missVectors = new ArrayList<>();
+            for (Embedding embedding : response.getResults()) {
+                int index = misses.get(embedding.getIndex());
+                vectors.set(index, embedding.getOutput());
+                missKeys.add(keys.get(index));
+                missVectors.add(embedding.getOutput());
+            }
+            try {
+                store.putAll(missKeys, missVectors);
+            } catch (Exception e) {
+                log.warn("Could not store embeddings in cache", e);
+            }
+            metadata = response.getMetadata();
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.size());
+        for (int i = 0; i < vectors.size(); i++) {
+            embeddings.add(new Embedding(vectors.get(i), i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return store.getDimensions();
+    }
+
+    public void compact() {
+        store.compact();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,472 @@
+package net.konjarla.ai.mcpclient.llm.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Persistent embedding cache. Vectors are appended as packed little-endian float32 to a memory-mapped file,
+ * their 128-bit content hashes to a second memory-mapped file in the same order. On open, the keys are read
+ * into an off-heap open-addressing hash table, which only touches the small key file, so the store is ready
+ * in milliseconds. When the store is three quarters full, it is compacted in the background to the most recently
+ * used half of the entries. Lookups and appends continue while the kept entries are copied, only the final swap
+ * blocks them. Entries that arrive while the store is completely full are not cached.
+ * <p>
+ * Both files start with a header of magic, version, dimensions, entry count and generation. The count in the
+ * key file is written after the entry, so a crash mid-append loses at most that entry. Every generation has its
+ * own files, and the generation in use is recorded in a pointer file that is replaced atomically once the files
+ * of a new generation are complete. A mapped file is never replaced or truncated, and a store whose headers do
+ * not match the pointer is reset.
+ * <p>
+ * Mapped buffers are only unmapped when they are garbage collected. The files of the previous generation are
+ * deleted after a compaction, which fails on Windows while they are still mapped; they are deleted on the next
+ * open instead.
+ */
+@Slf4j
+public class MappedEmbeddingStore implements AutoCloseable {
+    private static final int MAGIC = 0x454d4243;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COUNT_OFFSET = 12;
+    private static final int GENERATION_OFFSET = 16;
+    private static final int KEY_BYTES = 2 * Long.BYTES;
+    private static final String FILE_PREFIX = "embeddings-";
+    private static final String KEYS_SUFFIX = ".keys";
+    private static final String VECTORS_SUFFIX = ".vectors";
+    private static final String CURRENT_FILE = "embeddings.current";
+
+    private final Path dir;
+    private final int dimensions;
+    private final int maxEntries;
+    private final int compactionThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong clock = new AtomicLong();
+    // Compactions run one at a time, scheduled ones on a single background thread
+    private final Object compactionLock = new Object();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "embedding-cache-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean closed;
+    private int generation;
+    private FileChannel keysChannel;
+    private FileChannel vectorsChannel;
+    private MappedByteBuffer keysBuffer;
+    private MappedByteBuffer vectorsBuffer;
+    private LongBuffer keys;
+    private FloatBuffer vectors;
+    private int count;
+
+    // Off-heap index: slot -> key and slot -> record + 1, 0 marks an empty slot
+    private LongBuffer slotKeys;
+    private IntBuffer slotRecords;
+    private int slotMask;
+    // Last access tick per record, used to pick the entries kept by compaction. Records are stored from least to
+    // most recently used as of the last compaction, so on open the record index stands in for the access tick.
+    private long[] lastAccess;
+
+    public MappedEmbeddingStore(Path dir, int dimensions, int maxEntries) throws IOException {
+        if ((long) maxEntries * dimensions * Float.BYTES > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException("Embedding cache of " + maxEntries + " x " + dimensions
+                    + " floats does not fit in a single mapping");
+        }
+        this.dir = dir;
+        this.dimensions = dimensions;
+        this.maxEntries = maxEntries;
+        this.compactionThreshold = maxEntries - maxEntries / 4;
+        Files.createDirectories(dir);
+        open(readCurrentGeneration());
+        deleteStaleFiles();
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Vectors for the given keys, in the same order, null for misses
+    public List<float[]> getAll(List<Key> keysToFind) {
+        List<float[]> results = new ArrayList<>(keysToFind.size());
+        lock.readLock().lock();
+        try {
+            for (Key key : keysToFind) {
+                int record = find(key);
+                if (record < 0) {
+                    results.add(null);
+                } else {
+                    float[] vector = new float[dimensions];
+                    vectors.get(record * dimensions, vector);
+                    lastAccess[record] = clock.incrementAndGet();
+                    results.add(vector);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    public void putAll(List<Key> keysToPut, List<float[]> vectorsToPut) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < keysToPut.size(); i++) {
+                Key key = keysToPut.get(i);
+                float[] vector = vectorsToPut.get(i);
+                if (vector == null || vector.length != dimensions) {
+                    log.warn("Not caching embedding with {} dimensions, expected {}",
+                            vector == null ? 0 : vector.length, dimensions);
+                    continue;
+                }
+                if (find(key) >= 0) {
+                    continue;
+                }
+                if (count == maxEntries) {
+                    log.debug("Embedding cache is full, not caching until compaction completes");
+                    break;
+                }
+                append(key, vector);
+            }
+            if (count >= compactionThreshold) {
+                scheduleCompaction();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Keeps the most recently used half of the entries, on the calling thread
+    public void compact() {
+        synchronized (compactionLock) {
+            try {
+                compact(maxEntries / 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactionExecutor.shutdownNow();
+        try {
+            compactionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            keysBuffer.force();
+            vectorsBuffer.force();
+            keysChannel.close();
+            vectorsChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open(int generation) throws IOException {
+        this.generation = generation;
+        keysChannel = FileChannel.open(getKeysFile(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        vectorsChannel = FileChannel.open(getVectorsFile(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int keysLength = maxEntries * KEY_BYTES;
+        int vectorsLength = maxEntries * dimensions * Float.BYTES;
+        keysBuffer = keysChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + keysLength);
+        vectorsBuffer = vectorsChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + vectorsLength);
+        keysBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        vectorsBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (!isValidHeader(keysBuffer) || !isValidHeader(vectorsBuffer)) {
+            log.info("Initializing embedding cache in {}", dir);
+            writeHeader(keysBuffer, 0, generation);
+            writeHeader(vectorsBuffer, 0, generation);
+        }
+        count = Math.min(keysBuffer.getInt(COUNT_OFFSET), maxEntries);
+        keys = keysBuffer.slice(HEADER_BYTES, keysLength).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        vectors = vectorsBuffer.slice(HEADER_BYTES, vectorsLength).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+        int capacity = 1;
+        while (capacity < maxEntries * 2) {
+            capacity <<= 1;
+        }
+        slotMask = capacity - 1;
+        slotKeys = ByteBuffer.allocateDirect(capacity * KEY_BYTES).asLongBuffer();
+        slotRecords = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+        lastAccess = new long[maxEntries];
+        for (int record = 0; record < count; record++) {
+            index(new Key(keys.get(2 * record), keys.get(2 * record + 1)), record);
+            lastAccess[record] = record + 1;
+        }
+        clock.accumulateAndGet(count, Math::max);
+        log.info("Opened embedding cache in {} with {} entries", dir, count);
+    }
+
+    private boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == dimensions
+                && buffer.getInt(GENERATION_OFFSET) == generation;
+    }
+
+    private void writeHeader(ByteBuffer buffer, int entries, int generation) {
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, dimensions)
+                .putInt(COUNT_OFFSET, entries)
+                .putInt(GENERATION_OFFSET, generation);
+    }
+
+    private int find(Key key) {
+        int slot = (int) key.high() & slotMask;
+        while (true) {
+            int record = slotRecords.get(slot) - 1;
+            if (record < 0) {
+                return -1;
+            }
+            if (slotKeys.get(2 * slot) == key.high() && slotKeys.get(2 * slot + 1) == key.low()) {
+                return record;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private void index(Key key, int record) {
+        int slot = (int) key.high() & slotMask;
+        while (slotRecords.get(slot) != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        slotKeys.put(2 * slot, key.high());
+        slotKeys.put(2 * slot + 1, key.low());
+        slotRecords.put(slot, record + 1);
+    }
+
+    private void append(Key key, float[] vector) {
+        int record = count;
+        vectors.put(record * dimensions, vector);
+        keys.put(2 * record, key.high());
+        keys.put(2 * record + 1, key.low());
+        count++;
+        keysBuffer.putInt(COUNT_OFFSET, count);
+        index(key, record);
+        lastAccess[record] = clock.incrementAndGet();
+    }
+
+    private void scheduleCompaction() {
+        if (!compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } catch (Exception e) {
+                    log.warn("Embedding cache compaction failed", e);
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed
+            compactionScheduled.set(false);
+        }
+    }
+
+    private void compact(int keep) throws IOException {
+        int snapshot;
+        int previousGeneration;
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            snapshot = count;
+            previousGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+        int[] kept = IntStream.range(0, snapshot)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer record) -> lastAccess[record]).reversed())
+                .limit(keep)
+                .sorted(Comparator.comparingLong((Integer record) -> lastAccess[record]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        log.info("Compacting embedding cache from {} to {} entries", snapshot, kept.length);
+
+        int nextGeneration = previousGeneration + 1;
+        Path nextKeys = getKeysFile(nextGeneration);
+        Path nextVectors = getVectorsFile(nextGeneration);
+        boolean swapped = false;
+        try (FileChannel keysOut = FileChannel.open(nextKeys, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel vectorsOut = FileChannel.open(nextVectors, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Records below the snapshot are never modified, so they are copied without blocking the store
+            keysOut.position(HEADER_BYTES);
+            vectorsOut.position(HEADER_BYTES);
+            writeRecords(kept, keysOut, vectorsOut);
+            keysOut.force(true);
+            vectorsOut.force(true);
+
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                // Entries appended while the kept ones were copied
+                int[] appended = IntStream.range(snapshot, count).toArray();
+                writeRecords(appended, keysOut, vectorsOut);
+                int entries = kept.length + appended.length;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                writeHeader(header, entries, nextGeneration);
+                keysOut.write(header, 0);
+                header.rewind();
+                vectorsOut.write(header, 0);
+                keysOut.force(true);
+                vectorsOut.force(true);
+
+                long[] access = IntStream.concat(IntStream.of(kept), IntStream.of(appended))
+                        .mapToLong(record -> lastAccess[record])
+                        .toArray();
+                writeCurrentGeneration(nextGeneration);
+                swapped = true;
+                // The previous mappings stay valid until their buffers are garbage collected
+                keysChannel.close();
+                vectorsChannel.close();
+                open(nextGeneration);
+                System.arraycopy(access, 0, lastAccess, 0, access.length);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            int unused = swapped ? previousGeneration : nextGeneration;
+            deleteQuietly(getKeysFile(unused));
+            deleteQuietly(getVectorsFile(unused));
+        }
+    }
+
+    private void writeRecords(int[] records, FileChannel keysOut, FileChannel vectorsOut) throws IOException {
+        ByteBuffer keyBuffer = ByteBuffer.allocate(KEY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer vectorBuffer = ByteBuffer.allocate(dimensions * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[dimensions];
+        for (int record : records) {
+            keyBuffer.clear();
+            keyBuffer.putLong(keys.get(2 * record)).putLong(keys.get(2 * record + 1)).flip();
+            keysOut.write(keyBuffer);
+            vectors.get(record * dimensions, vector);
+            vectorBuffer.clear();
+            vectorBuffer.asFloatBuffer().put(vector);
+            vectorsOut.write(vectorBuffer);
+        }
+    }
+
+    private int readCurrentGeneration() {
+        Path current = dir.resolve(CURRENT_FILE);
+        if (!Files.exists(current)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(current).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Could not read embedding cache generation from {}, resetting", current, e);
+            return 0;
+        }
+    }
+
+    // Switches the store to the files of the generation, a crash before this keeps the previous generation
+    private void writeCurrentGeneration(int generation) throws IOException {
+        Path tempFile = Files.createTempFile(dir, CURRENT_FILE, ".tmp");
+        Files.writeString(tempFile, Integer.toString(generation), StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(tempFile, dir.resolve(CURRENT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Files of other generations are left over from compactions that crashed or could not delete them
+    private void deleteStaleFiles() throws IOException {
+        Path keysFile = getKeysFile(generation);
+        Path vectorsFile = getVectorsFile(generation);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        boolean generationFile = name.startsWith(FILE_PREFIX)
+                                && (name.endsWith(KEYS_SUFFIX) || name.endsWith(VECTORS_SUFFIX));
+                        boolean pointerTempFile = name.startsWith(CURRENT_FILE) && name.endsWith(".tmp");
+                        return generationFile || pointerTempFile;
+                    })
+                    .filter(file -> !file.equals(keysFile) && !file.equals(vectorsFile))
+                    .forEach(this::deleteQuietly);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete {}, it is deleted on the next open", file, e);
+        }
+    }
+
+    private Path getKeysFile(int generation) {
+        return dir.resolve(FILE_PREFIX + generation + KEYS_SUFFIX);
+    }
+
+    private Path getVectorsFile(int generation) {
+        return dir.resolve(FILE_PREFIX + generation + VECTORS_SUFFIX);
+    }
+
+    public record Key(long high, long low) {
+        // First 128 bits of the SHA-256 of the model and the text
+        public static Key of(String model, String text) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(model.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                ByteBuffer hash = ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+                return new Key(hash.getLong(), hash.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package net.konjarla.ai.mcpclient.llm.job;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.LlmService;
+import net.konjarla.ai.mcpclient.llm.model.ChatJob;
+import net.konjarla.ai.mcpclient.security.BearerTokenContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs tool chats as background jobs on a bounded executor, so long chats do not hold an HTTP connection
+ * open. Job state and results are kept in the {@link ChatJobStore}. Jobs belong to the user who submitted them
+ * and run with that user's token, so MCP calls are made on their behalf.
+ * <p>
+ * Once a job is done its state is final: every state change is applied atomically in the store and only to
+ * jobs that are not done yet, so a chat finishing after a cancel cannot overwrite it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatJobService {
+    @NonNull
+    private LlmService llmService;
+    @NonNull
+    private ChatJobStore chatJobStore;
+
+    @Value("${llm.jobs.pool-size:4}")
+    private int poolSize;
+    @Value("${llm.jobs.queue-capacity:100}")
+    private int queueCapacity;
+    @Value("${llm.jobs.shutdown-await:300s}")
+    private Duration shutdownAwait;
+
+    private ThreadPoolTaskExecutor executor;
+    private final Map<String, Future<?>> runningJobs = new ConcurrentHashMap<>();
+    // Transitions of unfinished jobs, replaying the latest state to new subscribers
+    private final Map<String, Sinks.Many<ChatJob>> jobEvents = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        // Not a bean, so Spring Boot keeps its own applicationTaskExecutor for MVC async requests
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(shutdownAwait.toMillis());
+        executor.initialize();
+
+        // Jobs that were in flight when the previous instance stopped will never finish
+        for (ChatJob job : chatJobStore.findAll()) {
+            if (!job.isDone()) {
+                log.info("Marking interrupted chat job {} as failed", job.getId());
+                transition(job.getId(), ChatJob.Status.FAILED, null, "Interrupted by restart");
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Drains queued and running jobs before the application stops
+        executor.shutdown();
+    }
+
+    // The access token is only kept in memory for the run, it is never stored with the job
+    public ChatJob submit(String owner, String accessToken, String prompt, String systemPrompt, List<String> history) {
+        Instant now = Instant.now();
+        ChatJob job = ChatJob.builder()
+                .id(UUID.randomUUID().toString())
+                .owner(owner)
+                .status(ChatJob.Status.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        Sinks.Many<ChatJob> events = Sinks.many().replay().latest();
+        events.tryEmitNext(job);
+        jobEvents.put(job.getId(), events);
+        chatJobStore.save(job);
+        // Registered before it is queued, so a job can be cancelled as soon as its id is known
+        FutureTask<Void> task = new FutureTask<>(
+                () -> run(job.getId(), accessToken, prompt, systemPrompt, history), null);
+        runningJobs.put(job.getId(), task);
+        try {
+            executor.execute(task);
+        } catch (TaskRejectedException e) {
+            log.warn("Chat job queue is full, rejecting job {}", job.getId());
+            runningJobs.remove(job.getId());
+            transition(job.getId(), ChatJob.Status.FAILED, null, "Too many jobs");
+            throw e;
+        }
+        return job;
+    }
+
+    // Jobs of other users are not found
+    public Optional<ChatJob> find(String owner, String id) {
+        return chatJobStore.find(id).filter(job -> owner != null && owner.equals(job.getOwner()));
+    }
+
+    public boolean cancel(String owner, String id) {
+        if (find(owner, id).isEmpty()) {
+            return false;
+        }
+        // Saved before interrupting the chat, so whatever the interrupted chat returns is discarded
+        boolean cancelled = transition(id, ChatJob.Status.CANCELLED, null, null).isPresent();
+        Future<?> future = runningJobs.remove(id);
+        if (future != null) {
+            future.cancel(true);
+        }
+        return cancelled;
+    }
+
+    // The current state of the job followed by its transitions until it is done. The store is read once per
+    // subscriber, for jobs that are already done or were submitted before a restart.
+    public Flux<ChatJob> updates(String owner, String id) {
+        return Flux.defer(() -> {
+            // Looked up before reading the store, so a transition in between is still replayed
+            Sinks.Many<ChatJob> events = jobEvents.get(id);
+            Optional<ChatJob> job = find(owner, id);
+            if (job.isEmpty()) {
+                return Flux.empty();
+            }
+            if (events == null || job.get().isDone()) {
+                return Flux.just(job.get());
+            }
+            return events.asFlux();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void run(String id, String accessToken, String prompt, String systemPrompt, List<String> history) {
+        try {
+            if (transition(id, ChatJob.Status.RUNNING, null, null).isEmpty()) {
+                return;
+            }
+            String result = BearerTokenContext.callWithToken(accessToken,
+                    () -> llmService.toolChatOrThrow(prompt, systemPrompt, history));
+            transition(id, ChatJob.Status.COMPLETED, result, null);
+        } catch (Exception e) {
+            if (transition(id, ChatJob.Status.FAILED, null, e.getMessage()).isPresent()) {
+                log.error("Error in chat job {}", id, e);
+            } else {
+                log.debug("Chat job {} ended after it was cancelled: {}", id, e.toString());
+            }
+        } finally {
+            runningJobs.remove(id);
+        }
+    }
+
+    // Moves a job that is not done yet to the given status, empty if the job is gone or already done
+    private Optional<ChatJob> transition(String id, ChatJob.Status status, String result, String error) {
+        Optional<ChatJob> updated = chatJobStore.update(id, job -> job.isDone() ? null : job.toBuilder()
+                .status(status)
+                .result(result)
+                .error(error)
+                .updatedAt(Instant.now())
+                .build());
+        updated.ifPresent(this::publish);
+        return updated;
+    }
+
+    private void publish(ChatJob job) {
+        Sinks.Many<ChatJob> events = job.isDone() ? jobEvents.remove(job.getId()) : jobEvents.get(job.getId());
+        if (events == null) {
+            return;
+        }
+        // Transitions of a job can be published from the job thread and a cancelling request at the same time
+        synchronized (events) {
+            events.tryEmitNext(job);
+            if (job.isDone()) {
+                events.tryEmitComplete();
+            }
+        }
+    }
+}
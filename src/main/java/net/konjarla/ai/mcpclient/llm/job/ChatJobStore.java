@@ -0,0 +1,147 @@
+package net.konjarla.ai.mcpclient.llm.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.model.ChatJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Keeps chat jobs as one JSON file per job on local disk, so results survive client reconnects and
+ * restarts. Jobs are removed once they have not been updated for the configured TTL.
+ * <p>
+ * Writes to the same job are serialized, so a state change based on the current state of a job cannot be lost
+ * to a concurrent one.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatJobStore {
+    @NonNull
+    private ObjectMapper objectMapper;
+
+    @Value("${llm.jobs.store.dir}")
+    private Path storeDir;
+    @Value("${llm.jobs.ttl:24h}")
+    private Duration ttl;
+
+    private final Object[] locks = createLocks(64);
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(storeDir);
+    }
+
+    public void save(ChatJob job) {
+        synchronized (getLock(job.getId())) {
+            write(job);
+        }
+    }
+
+    // Applies the updater to the current job atomically, the updater returns null to leave the job unchanged
+    public Optional<ChatJob> update(String id, UnaryOperator<ChatJob> updater) {
+        synchronized (getLock(id)) {
+            Optional<ChatJob> updated = find(id).map(updater);
+            updated.ifPresent(this::write);
+            return updated;
+        }
+    }
+
+    public Optional<ChatJob> find(String id) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        Path file = getFile(id);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), ChatJob.class));
+        } catch (IOException e) {
+            log.warn("Could not read chat job {}", id, e);
+            return Optional.empty();
+        }
+    }
+
+    public List<ChatJob> findAll() {
+        try (Stream<Path> files = Files.list(storeDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                    .map(file -> find(file.getFileName().toString().replace(".json", "")))
+                    .flatMap(Optional::stream)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${llm.jobs.eviction-interval:PT1M}")
+    public void evictExpired() {
+        Instant expiry = Instant.now().minus(ttl);
+        for (ChatJob job : findAll()) {
+            if (job.isDone() && job.getUpdatedAt() != null && job.getUpdatedAt().isBefore(expiry)) {
+                log.debug("Evicting expired chat job {}", job.getId());
+                synchronized (getLock(job.getId())) {
+                    try {
+                        Files.deleteIfExists(getFile(job.getId()));
+                    } catch (IOException e) {
+                        log.warn("Could not delete chat job {}", job.getId(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(ChatJob job) {
+        Path file = getFile(job.getId());
+        try {
+            // Write to a temporary file first so readers never see a partially written job
+            Path tempFile = Files.createTempFile(storeDir, job.getId(), ".tmp");
+            objectMapper.writeValue(tempFile.toFile(), job);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object getLock(String id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private static Object[] createLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private Path getFile(String id) {
+        return storeDir.resolve(id + ".json");
+    }
+
+    // Ids are used as file names, so only accept the UUIDs this store hands out
+    private boolean isValidId(String id) {
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.konjarla.ai.mcpclient.llm.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.Instant;
+
+@Getter
+@Builder(toBuilder = true)
+@ToString
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ChatJob {
+    private String id;
+    // Subject of the user who submitted the job, only that user can see or cancel it
+    private String owner;
+    private Status status;
+    private String result;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    @JsonIgnore
+    public boolean isDone() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+}
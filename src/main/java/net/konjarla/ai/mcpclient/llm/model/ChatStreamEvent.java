@@ -0,0 +1,31 @@
+package net.konjarla.ai.mcpclient.llm.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * A single event of a tool-enabled chat stream. {@code PROGRESS} and {@code TOOL} events are emitted
+ * while the model is calling tools, {@code TOKEN} events carry the answer text as it is generated. An
+ * {@code ERROR} event ends a stream that failed.
+ */
+@Getter
+@Builder
+@ToString
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ChatStreamEvent {
+    private Type type;
+    private String content;
+
+    public enum Type {
+        PROGRESS,
+        TOOL,
+        TOKEN,
+        ERROR
+    }
+}
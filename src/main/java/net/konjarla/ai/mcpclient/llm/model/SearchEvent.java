@@ -0,0 +1,30 @@
+package net.konjarla.ai.mcpclient.llm.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+/**
+ * A single event of an incremental search. {@code SEED} events carry results of an earlier prefix of the
+ * query, filtered to the extended query, {@code RESULTS} events carry the results of the query itself.
+ */
+@Getter
+@Builder
+@ToString
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class SearchEvent {
+    private Type type;
+    private List<VectorItem> results;
+
+    public enum Type {
+        SEED,
+        RESULTS
+    }
+}
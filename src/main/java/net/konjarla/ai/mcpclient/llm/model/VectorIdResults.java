@@ -0,0 +1,34 @@
+package net.konjarla.ai.mcpclient.llm.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+@Getter
+@Builder
+@ToString
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class VectorIdResults {
+    public static final String JSON_SCHEMA = """
+            {
+              "type": "object",
+              "properties": {
+                "ids": {
+                  "type": "array",
+                  "items": { "type": "string" }
+                }
+              },
+              "required": ["ids"],
+              "additionalProperties": false
+            }
+            """;
+
+    private List<String> ids;
+}
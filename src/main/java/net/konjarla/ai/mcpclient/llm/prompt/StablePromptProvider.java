@@ -0,0 +1,118 @@
+package net.konjarla.ai.mcpclient.llm.prompt;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides the parts of a prompt that must stay byte-identical between requests so that the Ollama KV cache
+ * and provider prompt caching can reuse them: system prompts rendered once without the user query, and tool
+ * definitions in a canonical order.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StablePromptProvider {
+    private static final String FILE_SEARCH_SYSTEM_PROMPT = "file-search-system-prompt";
+    private static final String RESULT_FORMAT_SYSTEM_PROMPT = "vector-search-result-format-system-prompt";
+    private static final String RESULT_IDS_SYSTEM_PROMPT = "result-ids-system-prompt";
+
+    @NonNull
+    private List<McpSyncClient> mcpSyncClients;
+
+    @Value("${file.assistant.system.prompt}")
+    private Resource systemPromptFileAssistant;
+    @Value("${result.format.system.prompt}")
+    private Resource formatSystemPrompt;
+    @Value("${result.ids.system.prompt}")
+    private Resource resultIdsSystemPrompt;
+
+    private final Map<String, String> systemPrompts = new ConcurrentHashMap<>();
+
+    public String getFileAssistantSystemPrompt() {
+        return getSystemPrompt(FILE_SEARCH_SYSTEM_PROMPT, systemPromptFileAssistant);
+    }
+
+    public String getResultFormatSystemPrompt() {
+        return getSystemPrompt(RESULT_FORMAT_SYSTEM_PROMPT, formatSystemPrompt);
+    }
+
+    public String getResultIdsSystemPrompt() {
+        return systemPrompts.computeIfAbsent(RESULT_IDS_SYSTEM_PROMPT, name -> readResource(resultIdsSystemPrompt));
+    }
+
+    public ToolCallback[] canonicalOrder(ToolCallback[] toolCallbacks) {
+        return Arrays.stream(toolCallbacks)
+                .sorted(Comparator.comparing(toolCallback -> toolCallback.getToolDefinition().name()))
+                .toArray(ToolCallback[]::new);
+    }
+
+    private String getSystemPrompt(String promptName, Resource defaultPrompt) {
+        String cached = systemPrompts.get(promptName);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            String mcpPrompt = getMcpSystemPrompt(promptName);
+            if (mcpPrompt != null && !mcpPrompt.isEmpty()) {
+                log.debug("Caching system prompt {} from MCP", promptName);
+                systemPrompts.putIfAbsent(promptName, mcpPrompt);
+                return systemPrompts.get(promptName);
+            }
+        } catch (Exception e) {
+            // Not cached, so the MCP prompt is picked up once the server is reachable again
+            log.warn("Could not get system prompt {} from MCP, using default", promptName, e);
+            return readResource(defaultPrompt);
+        }
+        log.debug("Caching default system prompt for {}: {}", promptName, defaultPrompt);
+        systemPrompts.putIfAbsent(promptName, readResource(defaultPrompt));
+        return systemPrompts.get(promptName);
+    }
+
+    private String getMcpSystemPrompt(String promptName) {
+        if (mcpSyncClients.isEmpty()) {
+            return null;
+        }
+        McpSyncClient mcpSyncClient = mcpSyncClients.get(0);
+        for (McpSchema.Prompt prompt : mcpSyncClient.listPrompts().prompts()) {
+            if (prompt.name().equals(promptName)) {
+                // Render without the user query, so the system prompt is the same for every request
+                Map<String, Object> arguments = new HashMap<>();
+                if (prompt.arguments() != null) {
+                    prompt.arguments().forEach(argument -> arguments.put(argument.name(), ""));
+                }
+                McpSchema.GetPromptResult response = mcpSyncClient.getPrompt(
+                        new McpSchema.GetPromptRequest(prompt.name(), arguments));
+                if (response.messages() != null && !response.messages().isEmpty()
+                        && response.messages().get(0).content() instanceof McpSchema.TextContent textContent) {
+                    return textContent.text();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String readResource(Resource resource) {
+        try {
+            return resource.getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.konjarla.ai.mcpclient.llm.request;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of in-flight LLM requests by id so they can be cancelled. Cancelling a request completes the
+ * response early and cancels the upstream publisher, which aborts the HTTP exchange with the model provider
+ * and interrupts pending MCP tool calls.
+ * <p>
+ * Requests are scoped to their owner, the same id from another caller is a different request, so callers can
+ * neither cancel nor supersede each other's requests.
+ */
+@Component
+@Slf4j
+public class LlmRequestRegistry {
+    private static final String CANCELLED_METRIC = "llm.requests.cancelled";
+    private static final String ANONYMOUS_OWNER = "anonymous";
+
+    private final Map<String, Sinks.One<Boolean>> requests = new ConcurrentHashMap<>();
+    private final Consumer<String> cancellationListener;
+
+    // Counts cancellations in the llm.requests.cancelled metric, tagged with the reason
+    @Autowired
+    public LlmRequestRegistry(MeterRegistry meterRegistry) {
+        this(reason -> meterRegistry.counter(CANCELLED_METRIC, "reason", reason).increment());
+    }
+
+    // Reports the reason of every cancellation to the listener
+    public LlmRequestRegistry(Consumer<String> cancellationListener) {
+        this.cancellationListener = cancellationListener;
+    }
+
+    public <T> Flux<T> track(String owner, String requestId, Flux<T> flux) {
+        String key = key(owner, requestId);
+        return Flux.defer(() -> {
+            Sinks.One<Boolean> cancelSignal = register(key);
+            return flux.takeUntilOther(cancelSignal.asMono())
+                    .doOnCancel(() -> onClientCancel(key, cancelSignal))
+                    .doFinally(signal -> requests.remove(key, cancelSignal));
+        });
+    }
+
+    public <T> Mono<T> track(String owner, String requestId, Mono<T> mono) {
+        String key = key(owner, requestId);
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> cancelSignal = register(key);
+            return mono.takeUntilOther(cancelSignal.asMono())
+                    .doOnCancel(() -> onClientCancel(key, cancelSignal))
+                    .doFinally(signal -> requests.remove(key, cancelSignal));
+        });
+    }
+
+    // Only cancels a request tracked for the same owner
+    public boolean cancel(String owner, String requestId) {
+        return cancel(key(owner, requestId), "explicit");
+    }
+
+    private String key(String owner, String requestId) {
+        return (owner != null ? owner : ANONYMOUS_OWNER) + "/" + requestId;
+    }
+
+    private Sinks.One<Boolean> register(String requestId) {
+        Sinks.One<Boolean> cancelSignal = Sinks.one();
+        Sinks.One<Boolean> previous = requests.put(requestId, cancelSignal);
+        if (previous != null) {
+            // A new query with the same id supersedes the one still running
+            log.debug("Request {} superseded", requestId);
+            previous.tryEmitValue(true);
+            cancellationListener.accept("superseded");
+        }
+        return cancelSignal;
+    }
+
+    private boolean cancel(String requestId, String reason) {
+        Sinks.One<Boolean> cancelSignal = requests.remove(requestId);
+        if (cancelSignal == null) {
+            return false;
+        }
+        log.debug("Cancelling request {} ({})", requestId, reason);
+        cancelSignal.tryEmitValue(true);
+        cancellationListener.accept(reason);
+        return true;
+    }
+
+    // Spring MVC cancels the subscription when the async request times out, and for streams when writing to a
+    // client that went away fails. It does not notice a client leaving while a single value is pending.
+    private void onClientCancel(String requestId, Sinks.One<Boolean> cancelSignal) {
+        if (requests.remove(requestId, cancelSignal)) {
+            log.debug("Request {} cancelled by client disconnect", requestId);
+            cancellationListener.accept("client_disconnect");
+        }
+    }
+}
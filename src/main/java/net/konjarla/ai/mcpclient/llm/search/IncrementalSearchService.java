@@ -0,0 +1,224 @@
+package net.konjarla.ai.mcpclient.llm.search;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PostConstruct;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.VectorItemHydrator;
+import net.konjarla.ai.mcpclient.llm.model.SearchEvent;
+import net.konjarla.ai.mcpclient.llm.model.VectorItem;
+import net.konjarla.ai.mcpclient.llm.request.LlmRequestRegistry;
+import net.konjarla.ai.mcpclient.util.RequestContextUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search-as-you-type over the MCP search tool, without going through the LLM. Each user has at most one
+ * search in flight: a new query supersedes the previous one, and is only sent to the MCP server after the
+ * debounce delay. Results of earlier queries are kept per user, so a query that extends a previous one is
+ * answered immediately with the previous results filtered to the new query while the search runs. Cached
+ * results expire after the cache TTL: an expired query is searched again, its old results are only used as seed.
+ * <p>
+ * Searches are tracked in their own registry: a superseded keystroke is not a cancelled chat request, and
+ * searches cannot be cancelled through the chat request endpoint.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IncrementalSearchService {
+    @NonNull
+    private List<McpSyncClient> mcpSyncClients;
+    @NonNull
+    private VectorItemHydrator vectorItemHydrator;
+
+    // A superseded keystroke is not a cancellation worth counting
+    private final LlmRequestRegistry searchRequests = new LlmRequestRegistry(reason -> {
+    });
+
+    @Value("${search.incremental.tool.name}")
+    private String toolName;
+    @Value("${search.incremental.tool.query-argument:query}")
+    private String queryArgument;
+    @Value("${search.incremental.tool.top-k-argument:topK}")
+    private String topKArgument;
+    // Name of the single object argument the search request is wrapped in, empty for top level arguments
+    @Value("${search.incremental.tool.request-argument:}")
+    private String requestArgument;
+    @Value("${search.incremental.top-k:5}")
+    private int topK;
+    @Value("${search.incremental.min-length:3}")
+    private int minLength;
+    @Value("${search.incremental.debounce:150ms}")
+    private Duration debounce;
+    @Value("${search.incremental.max-concurrent-per-user:1}")
+    private int maxConcurrentPerUser;
+    @Value("${search.incremental.permit-timeout:5s}")
+    private Duration permitTimeout;
+    @Value("${search.incremental.cache-size-per-user:32}")
+    private int cacheSizePerUser;
+    @Value("${search.incremental.cache-ttl:60s}")
+    private Duration cacheTtl;
+    @Value("${search.incremental.max-users:1000}")
+    private int maxUsers;
+
+    private Map<String, UserSearchState> users;
+
+    @PostConstruct
+    void init() {
+        users = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserSearchState> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+
+    // userKey must be a stable identity of the user, such as the subject of their verified token
+    public Flux<SearchEvent> search(String userKey, String query) {
+        String normalizedQuery = query == null ? "" : query.trim().replaceAll("\\s+", " ");
+        if (normalizedQuery.length() < minLength) {
+            return Flux.empty();
+        }
+        String cacheKey = normalizedQuery.toLowerCase();
+        UserSearchState state = users.computeIfAbsent(userKey, key -> new UserSearchState());
+
+        List<VectorItem> cached = state.get(cacheKey);
+        if (cached != null) {
+            log.debug("Incremental search cache hit for {}", cacheKey);
+            return searchRequests.track(userKey, "search", Flux.just(event(SearchEvent.Type.RESULTS, cached)));
+        }
+
+        Mono<SearchEvent> search = Mono.delay(debounce)
+                .then(RequestContextUtil.fromCallable(() -> searchWithPermit(state, normalizedQuery)))
+                .doOnNext(results -> state.put(cacheKey, results))
+                .map(results -> event(SearchEvent.Type.RESULTS, results))
+                .onErrorResume(e -> {
+                    log.warn("Incremental search failed for {}", normalizedQuery, e);
+                    return Mono.empty();
+                });
+
+        List<VectorItem> seed = state.seed(cacheKey);
+        Flux<SearchEvent> events = seed.isEmpty()
+                ? search.flux()
+                : search.flux().startWith(event(SearchEvent.Type.SEED, seed));
+        // Registering under the user's key supersedes the user's previous search
+        return searchRequests.track(userKey, "search", events);
+    }
+
+    private List<VectorItem> searchWithPermit(UserSearchState state, String query) throws InterruptedException {
+        if (!state.permits.tryAcquire(permitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Too many concurrent searches");
+        }
+        try {
+            return callSearchTool(query);
+        } finally {
+            state.permits.release();
+        }
+    }
+
+    private List<VectorItem> callSearchTool(String query) {
+        McpSyncClient mcpSyncClient = mcpSyncClients.get(0);
+        McpSchema.CallToolResult result = mcpSyncClient.callTool(
+                new McpSchema.CallToolRequest(toolName, getArguments(query)));
+        List<String> toolResults = new ArrayList<>();
+        if (result.content() != null) {
+            for (McpSchema.Content content : result.content()) {
+                if (content instanceof McpSchema.TextContent textContent) {
+                    toolResults.add(textContent.text());
+                }
+            }
+        }
+        return new ArrayList<>(vectorItemHydrator.extractSearchResults(toolResults).values());
+    }
+
+    private Map<String, Object> getArguments(String query) {
+        Map<String, Object> request = new HashMap<>();
+        request.put(queryArgument, query);
+        request.put(topKArgument, topK);
+        if (requestArgument.isBlank()) {
+            return request;
+        }
+        return Map.of(requestArgument, request);
+    }
+
+    private SearchEvent event(SearchEvent.Type type, List<VectorItem> results) {
+        return SearchEvent.builder()
+                .type(type)
+                .results(results)
+                .build();
+    }
+
+    private record CachedResults(List<VectorItem> items, long cachedAt) {
+    }
+
+    private class UserSearchState {
+        private final Semaphore permits = new Semaphore(maxConcurrentPerUser);
+        private final Map<String, CachedResults> results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResults> eldest) {
+                return size() > cacheSizePerUser;
+            }
+        };
+
+        // Results of the query, null if they are not cached or expired
+        synchronized List<VectorItem> get(String query) {
+            CachedResults cached = results.get(query);
+            if (cached == null || System.currentTimeMillis() - cached.cachedAt() > cacheTtl.toMillis()) {
+                return null;
+            }
+            return cached.items();
+        }
+
+        synchronized void put(String query, List<VectorItem> items) {
+            results.put(query, new CachedResults(items, System.currentTimeMillis()));
+        }
+
+        // Results of the longest cached prefix of the query, expired or not, keeping only those matching every term
+        // of the query. Expired results of the query itself are used as they are.
+        synchronized List<VectorItem> seed(String query) {
+            String prefix = null;
+            for (String cachedQuery : results.keySet()) {
+                if (query.startsWith(cachedQuery) && (prefix == null || cachedQuery.length() > prefix.length())) {
+                    prefix = cachedQuery;
+                }
+            }
+            if (prefix == null) {
+                return List.of();
+            }
+            if (prefix.equals(query)) {
+                return results.get(prefix).items();
+            }
+            String[] terms = query.split(" ");
+            List<VectorItem> seed = new ArrayList<>();
+            for (VectorItem item : results.get(prefix).items()) {
+                String haystack = ((item.getFilename() == null ? "" : item.getFilename()) + " "
+                        + (item.getText() == null ? "" : item.getText())).toLowerCase();
+                boolean matches = true;
+                for (String term : terms) {
+                    if (!haystack.contains(term)) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches) {
+                    seed.add(item);
+                }
+            }
+            return seed;
+        }
+    }
+}
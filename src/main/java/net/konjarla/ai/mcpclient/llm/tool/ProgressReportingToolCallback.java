@@ -0,0 +1,84 @@
+package net.konjarla.ai.mcpclient.llm.tool;
+
+import lombok.extern.slf4j.Slf4j;
+import net.konjarla.ai.mcpclient.llm.model.ChatStreamEvent;
+import net.konjarla.ai.mcpclient.util.RequestContextUtil;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.web.context.request.RequestAttributes;
+
+import java.util.function.Consumer;
+
+/**
+ * Decorates a {@link ToolCallback} so that every invocation is reported to a listener before and after
+ * the delegate runs. Used by the streaming tool chat to tell the client which tool is running.
+ * <p>
+ * Streaming tool calls run on a Reactor thread, so the delegate is called with the request attributes of
+ * the originating request bound, which makes MCP calls carry the user's token instead of the client
+ * credentials token.
+ */
+@Slf4j
+public class ProgressReportingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final Consumer<ChatStreamEvent> listener;
+    private final RequestAttributes requestAttributes;
+
+    public ProgressReportingToolCallback(ToolCallback delegate, Consumer<ChatStreamEvent> listener,
+                                         RequestAttributes requestAttributes) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.requestAttributes = requestAttributes;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String toolName = delegate.getToolDefinition().name();
+        log.debug("Calling tool {} with input: {}", toolName, toolInput);
+        listener.accept(ChatStreamEvent.builder()
+                .type(ChatStreamEvent.Type.PROGRESS)
+                .content("Searching files...")
+                .build());
+        listener.accept(ChatStreamEvent.builder()
+                .type(ChatStreamEvent.Type.TOOL)
+                .content(toolName)
+                .build());
+        String result = callDelegate(toolInput, toolContext);
+        listener.accept(ChatStreamEvent.builder()
+                .type(ChatStreamEvent.Type.PROGRESS)
+                .content("Generating answer...")
+                .build());
+        return result;
+    }
+
+    private String callDelegate(String toolInput, ToolContext toolContext) {
+        if (requestAttributes == null) {
+            return delegate.call(toolInput, toolContext);
+        }
+        try {
+            return RequestContextUtil.callWithRequestAttributes(requestAttributes,
+                    () -> delegate.call(toolInput, toolContext));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package net.konjarla.ai.mcpclient.llm.tool;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.function.Consumer;
+
+/**
+ * Decorates a {@link ToolCallback} so that the raw result of every invocation is handed to a listener
+ * before it is returned to the model.
+ */
+public class ResultCapturingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final Consumer<String> listener;
+
+    public ResultCapturingToolCallback(ToolCallback delegate, Consumer<String> listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String result = delegate.call(toolInput, toolContext);
+        listener.accept(result);
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package net.konjarla.ai.mcpclient.security;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Bearer token of the user a background task runs for. Request attributes do not outlive the request, so tasks
+ * such as chat jobs bind the user's token here and MCP calls made by the task are sent with it.
+ */
+public final class BearerTokenContext {
+    private static final ThreadLocal<String> TOKEN = new ThreadLocal<>();
+
+    private BearerTokenContext() {
+    }
+
+    public static String getToken() {
+        return TOKEN.get();
+    }
+
+    // Runs a call on the current thread with the given token, restoring the previous one after
+    public static <T> T callWithToken(String token, Callable<T> callable) throws Exception {
+        String previous = TOKEN.get();
+        TOKEN.set(token);
+        try {
+            return callable.call();
+        } finally {
+            if (previous != null) {
+                TOKEN.set(previous);
+            } else {
+                TOKEN.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.konjarla.ai.mcpclient.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoders;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.SupplierJwtDecoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Identifies the caller by the subject of their bearer token. The token is verified against the auth server
+ * keys, so the subject can be used to scope per-user state without trusting raw header values.
+ */
+@Component
+@Slf4j
+public class CallerIdentityResolver {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtDecoder jwtDecoder;
+
+    public CallerIdentityResolver(
+            @Value("${spring.security.oauth2.client.provider.authserver.issuer-uri}") String issuerUri) {
+        // Issuer metadata is fetched on first use, so startup does not depend on the auth server
+        this.jwtDecoder = new SupplierJwtDecoder(() -> JwtDecoders.fromIssuerLocation(issuerUri));
+    }
+
+    // Subject of the verified bearer token, null for anonymous callers and invalid tokens
+    public String getSubject(HttpServletRequest request) {
+        String token = getBearerToken(request);
+        if (token == null) {
+            return null;
+        }
+        try {
+            return jwtDecoder.decode(token).getSubject();
+        } catch (JwtException e) {
+            log.debug("Ignoring invalid bearer token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Raw bearer token of the request, not verified, only to be passed on to the MCP server
+    public String getBearerToken(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null
+                || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        return authorization.substring(BEARER_PREFIX.length()).trim();
+    }
+}
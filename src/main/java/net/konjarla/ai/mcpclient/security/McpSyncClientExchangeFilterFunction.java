@@ -34,7 +34,15 @@ public class McpSyncClientExchangeFilterFunction implements ExchangeFilterFuncti
 
     @Override
     public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
-        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+        String userToken = BearerTokenContext.getToken();
+        if (userToken != null) {
+            // Background task running for a user, e.g. a chat job
+            ClientRequest requestWithToken = ClientRequest.from(request)
+                    .headers(headers -> headers.setBearerAuth(userToken))
+                    .build();
+            return next.exchange(requestWithToken);
+        }
+        else if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
             HttpServletRequest httpServletRequest = attributes.getRequest();
             String authorization = httpServletRequest.getHeader("Authorization").substring("Bearer ".length());
             log.debug("Adding access token to request: {}", authorization);
@@ -0,0 +1,34 @@
+package net.konjarla.ai.mcpclient.util;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+public class RequestContextUtil {
+    // Runs a blocking call on boundedElastic with the current request attributes, so MCP calls still use the
+    // user's token. Cancelling the subscription interrupts the call.
+    public static <T> Mono<T> fromCallable(Callable<T> callable) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return Mono.fromCallable(() -> callWithRequestAttributes(requestAttributes, callable))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Runs a call on the current thread with the given request attributes, restoring the previous ones after
+    public static <T> T callWithRequestAttributes(RequestAttributes requestAttributes, Callable<T> callable)
+            throws Exception {
+        RequestAttributes previous = RequestContextHolder.getRequestAttributes();
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        try {
+            return callable.call();
+        } finally {
+            if (previous != null) {
+                RequestContextHolder.setRequestAttributes(previous);
+            } else {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }
+    }
+}
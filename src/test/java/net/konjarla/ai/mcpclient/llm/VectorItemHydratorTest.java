@@ -0,0 +1,68 @@
+package net.konjarla.ai.mcpclient.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import net.konjarla.ai.mcpclient.llm.model.VectorItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.mcp.SyncMcpToolCallback;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VectorItemHydratorTest {
+
+    private static final String SEARCH_RESULTS = """
+            [
+              {"id": "doc-1", "text": "Flight to Rome on May 3", "metadata": {"filename": "/docs/travel/rome.md"}, "score": 0.91},
+              {"id": "doc-2", "text": "Hotel booking in Florence", "metadata": {"filename": "/docs/travel/florence.pdf"}, "score": 0.84}
+            ]
+            """;
+
+    private final VectorItemHydrator vectorItemHydrator = new VectorItemHydrator(new ObjectMapper());
+
+    @Test
+    void hydratesIdsFromSyncMcpToolCallbackResult() {
+        List<VectorItem> items = vectorItemHydrator.hydrate(List.of("doc-2", "unknown", "doc-1"),
+                List.of(callSearchTool(SEARCH_RESULTS)));
+
+        assertThat(items).extracting(VectorItem::getId).containsExactly("doc-2", "doc-1");
+        assertThat(items.get(0).getFilename()).isEqualTo("/docs/travel/florence.pdf");
+        assertThat(items.get(0).getText()).isEqualTo("Hotel booking in Florence");
+        assertThat(items.get(1).getFilename()).isEqualTo("/docs/travel/rome.md");
+        assertThat(items.get(1).getText()).isEqualTo("Flight to Rome on May 3");
+    }
+
+    @Test
+    void keepsFirstResultForDuplicateIds() {
+        String otherResults = """
+                [{"id": "doc-1", "text": "Other text", "metadata": {"filename": "/other.md"}}]
+                """;
+
+        List<VectorItem> items = vectorItemHydrator.hydrate(List.of("doc-1"),
+                List.of(callSearchTool(SEARCH_RESULTS), callSearchTool(otherResults)));
+
+        assertThat(items).extracting(VectorItem::getText).containsExactly("Flight to Rome on May 3");
+    }
+
+    @Test
+    void ignoresToolResultsThatAreNotSearchResults() {
+        List<VectorItem> items = vectorItemHydrator.hydrate(List.of("doc-1"),
+                List.of("not json", callSearchTool("No files found")));
+
+        assertThat(items).isEmpty();
+    }
+
+    private String callSearchTool(String searchResults) {
+        McpSyncClient mcpSyncClient = mock(McpSyncClient.class);
+        when(mcpSyncClient.callTool(any())).thenReturn(
+                new McpSchema.CallToolResult(List.of(new McpSchema.TextContent(searchResults)), false));
+        SyncMcpToolCallback toolCallback = new SyncMcpToolCallback(mcpSyncClient,
+                new McpSchema.Tool("fileSearch", "Search indexed files", "{\"type\": \"object\"}"));
+        return toolCallback.call("{\"query\": \"travel\", \"topK\": 5}");
+    }
+}
@@ -0,0 +1,81 @@
+package net.konjarla.ai.mcpclient.llm.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEmbeddingModelTest {
+    private static final int DIMENSIONS = 3;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forwardsOnlyMissesAndKeepsBatchOrder() throws IOException {
+        RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+        try (CachingEmbeddingModel embeddingModel = new CachingEmbeddingModel(delegate, "test-model",
+                new MappedEmbeddingStore(dir, DIMENSIONS, 16))) {
+            embeddingModel.call(new EmbeddingRequest(List.of("alpha", "gamma"), null));
+
+            EmbeddingResponse response = embeddingModel.call(
+                    new EmbeddingRequest(List.of("alpha", "beta", "gamma", "delta"), null));
+
+            assertThat(delegate.requests).containsExactly(List.of("alpha", "gamma"), List.of("beta", "delta"));
+            List<Embedding> results = response.getResults();
+            assertThat(results).extracting(Embedding::getIndex).containsExactly(0, 1, 2, 3);
+            assertThat(results.get(0).getOutput()).containsExactly(vector("alpha"));
+            assertThat(results.get(1).getOutput()).containsExactly(vector("beta"));
+            assertThat(results.get(2).getOutput()).containsExactly(vector("gamma"));
+            assertThat(results.get(3).getOutput()).containsExactly(vector("delta"));
+        }
+    }
+
+    @Test
+    void doesNotCallDelegateWhenAllTextsAreCached() throws IOException {
+        RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+        try (CachingEmbeddingModel embeddingModel = new CachingEmbeddingModel(delegate, "test-model",
+                new MappedEmbeddingStore(dir, DIMENSIONS, 16))) {
+            embeddingModel.call(new EmbeddingRequest(List.of("alpha", "beta"), null));
+
+            EmbeddingResponse response = embeddingModel.call(new EmbeddingRequest(List.of("beta", "alpha"), null));
+
+            assertThat(delegate.requests).hasSize(1);
+            assertThat(response.getResults().get(0).getOutput()).containsExactly(vector("beta"));
+            assertThat(response.getResults().get(1).getOutput()).containsExactly(vector("alpha"));
+        }
+    }
+
+    private static float[] vector(String text) {
+        return new float[]{text.length(), text.charAt(0), text.hashCode()};
+    }
+
+    private static class RecordingEmbeddingModel implements EmbeddingModel {
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package net.konjarla.ai.mcpclient.llm.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedEmbeddingStoreTest {
+    private static final int DIMENSIONS = 4;
+    private static final int MAX_ENTRIES = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsPersistedEntriesAfterReopen() throws IOException {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(List.of(key(0), key(1)), List.of(vector(0), vector(1)));
+        }
+
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            List<float[]> vectors = store.getAll(List.of(key(1), key(2), key(0)));
+
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(vectors.get(0)).containsExactly(vector(1));
+            assertThat(vectors.get(1)).isNull();
+            assertThat(vectors.get(2)).containsExactly(vector(0));
+        }
+    }
+
+    @Test
+    void compactionKeepsMostRecentlyUsedHalf() throws IOException {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(keys(0, 5), vectors(0, 5));
+            store.getAll(List.of(key(0)));
+            store.getAll(List.of(key(2)));
+            store.getAll(List.of(key(4)));
+
+            store.compact();
+
+            assertThat(store.size()).isEqualTo(MAX_ENTRIES / 2);
+            assertThat(store.getAll(List.of(key(1)))).containsOnlyNulls();
+            assertThat(store.getAll(List.of(key(0), key(2), key(3), key(4)))).doesNotContainNull();
+        }
+
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            assertThat(store.size()).isEqualTo(MAX_ENTRIES / 2);
+            assertThat(store.getAll(List.of(key(3))).get(0)).containsExactly(vector(3));
+        }
+        assertThat(listFiles("*.keys")).hasSize(1);
+        assertThat(listFiles("*.vectors")).hasSize(1);
+    }
+
+    @Test
+    void recencySurvivesReopen() throws IOException {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(keys(0, 5), vectors(0, 5));
+            store.getAll(List.of(key(0)));
+            store.getAll(List.of(key(1)));
+            // Keeps 3, 4, 0, 1 from least to most recently used
+            store.compact();
+        }
+
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(List.of(key(5)), List.of(vector(5)));
+
+            store.compact();
+
+            assertThat(store.getAll(List.of(key(3)))).containsOnlyNulls();
+            assertThat(store.getAll(List.of(key(4), key(0), key(1), key(5)))).doesNotContainNull();
+        }
+    }
+
+    @Test
+    void compactsInBackgroundWhenThreeQuartersFull() throws Exception {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(keys(0, 6), vectors(0, 6));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (store.size() > MAX_ENTRIES / 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertThat(store.size()).isEqualTo(MAX_ENTRIES / 2);
+            assertThat(store.getAll(keys(2, 6))).doesNotContainNull();
+        }
+    }
+
+    @Test
+    void resetsOnDimensionMismatch() throws IOException {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(List.of(key(0)), List.of(vector(0)));
+        }
+
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS * 2, MAX_ENTRIES)) {
+            assertThat(store.size()).isZero();
+        }
+    }
+
+    @Test
+    void resetsOnGenerationMismatch() throws IOException {
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            store.putAll(List.of(key(0)), List.of(vector(0)));
+        }
+        try (FileChannel channel = FileChannel.open(listFiles("*.keys").get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 42), 16);
+        }
+
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(dir, DIMENSIONS, MAX_ENTRIES)) {
+            assertThat(store.size()).isZero();
+            assertThat(store.getAll(List.of(key(0)))).containsOnlyNulls();
+        }
+    }
+
+    private List<Path> listFiles(String glob) throws IOException {
+        PathMatcher matcher = dir.getFileSystem().getPathMatcher("glob:" + glob);
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> matcher.matches(file.getFileName())).toList();
+        }
+    }
+
+    private static MappedEmbeddingStore.Key key(int i) {
+        return MappedEmbeddingStore.Key.of("test-model", "text " + i);
+    }
+
+    private static List<MappedEmbeddingStore.Key> keys(int from, int to) {
+        return IntStream.range(from, to).mapToObj(MappedEmbeddingStoreTest::key).toList();
+    }
+
+    private static float[] vector(int i) {
+        return new float[]{i, i + 0.5f, -i, 1};
+    }
+
+    private static List<float[]> vectors(int from, int to) {
+        return IntStream.range(from, to).mapToObj(MappedEmbeddingStoreTest::vector).toList();
+    }
+}
@@ -0,0 +1,190 @@
+package net.konjarla.ai.mcpclient.llm.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.konjarla.ai.mcpclient.llm.LlmService;
+import net.konjarla.ai.mcpclient.llm.model.ChatJob;
+import net.konjarla.ai.mcpclient.security.BearerTokenContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatJobServiceTest {
+    @TempDir
+    Path dir;
+
+    private final LlmService llmService = mock(LlmService.class);
+    private ChatJobStore chatJobStore;
+    private ChatJobService chatJobService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        chatJobStore = new ChatJobStore(new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(chatJobStore, "storeDir", dir);
+        ReflectionTestUtils.setField(chatJobStore, "ttl", Duration.ofHours(1));
+        chatJobStore.init();
+
+        chatJobService = new ChatJobService(llmService, chatJobStore);
+        ReflectionTestUtils.setField(chatJobService, "poolSize", 1);
+        ReflectionTestUtils.setField(chatJobService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(chatJobService, "shutdownAwait", Duration.ofSeconds(10));
+        chatJobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatJobService.shutdown();
+    }
+
+    @Test
+    void completedChatEndsCompletedAndRunsWithOwnersToken() throws IOException {
+        AtomicReference<String> token = new AtomicReference<>();
+        when(llmService.toolChatOrThrow(any(), any(), any())).thenAnswer(invocation -> {
+            token.set(BearerTokenContext.getToken());
+            return "answer";
+        });
+
+        ChatJob job = awaitDone(chatJobService.submit("alice", "alice-token", "prompt", null, null));
+
+        assertThat(job.getStatus()).isEqualTo(ChatJob.Status.COMPLETED);
+        assertThat(job.getResult()).isEqualTo("answer");
+        assertThat(token).hasValue("alice-token");
+        assertThat(Files.readString(dir.resolve(job.getId() + ".json"))).doesNotContain("alice-token");
+    }
+
+    @Test
+    void throwingChatEndsFailed() {
+        when(llmService.toolChatOrThrow(any(), any(), any())).thenThrow(new IllegalStateException("provider down"));
+
+        ChatJob job = awaitDone(chatJobService.submit("alice", "token", "prompt", null, null));
+
+        assertThat(job.getStatus()).isEqualTo(ChatJob.Status.FAILED);
+        assertThat(job.getError()).isEqualTo("provider down");
+    }
+
+    @Test
+    void jobCancelledBeforeRunningNeverRuns() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(llmService.toolChatOrThrow(eq("first"), any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return "first answer";
+        });
+        ChatJob first = chatJobService.submit("alice", "token", "first", null, null);
+        ChatJob second = chatJobService.submit("alice", "token", "second", null, null);
+
+        assertThat(chatJobService.cancel("alice", second.getId())).isTrue();
+        release.countDown();
+
+        assertThat(awaitDone(first).getStatus()).isEqualTo(ChatJob.Status.COMPLETED);
+        chatJobService.shutdown();
+        assertThat(awaitDone(second).getStatus()).isEqualTo(ChatJob.Status.CANCELLED);
+        verify(llmService, never()).toolChatOrThrow(eq("second"), any(), any());
+    }
+
+    @Test
+    void jobCancelledWhileRunningStaysCancelledWhenChatReturns() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch returned = new CountDownLatch(1);
+        when(llmService.toolChatOrThrow(any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                // A chat that returns an answer despite the interrupt
+            }
+            returned.countDown();
+            return "late answer";
+        });
+        ChatJob job = chatJobService.submit("alice", "token", "prompt", null, null);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(chatJobService.cancel("alice", job.getId())).isTrue();
+
+        assertThat(returned.await(5, TimeUnit.SECONDS)).isTrue();
+        chatJobService.shutdown();
+        ChatJob cancelled = chatJobStore.find(job.getId()).orElseThrow();
+        assertThat(cancelled.getStatus()).isEqualTo(ChatJob.Status.CANCELLED);
+        assertThat(cancelled.getResult()).isNull();
+        assertThat(chatJobService.cancel("alice", job.getId())).isFalse();
+    }
+
+    @Test
+    void jobsOfOtherUsersAreNotFound() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(llmService.toolChatOrThrow(any(), any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return "answer";
+        });
+        ChatJob job = chatJobService.submit("alice", "token", "prompt", null, null);
+
+        assertThat(chatJobService.find("bob", job.getId())).isEmpty();
+        assertThat(chatJobService.find(null, job.getId())).isEmpty();
+        assertThat(chatJobService.cancel("bob", job.getId())).isFalse();
+        assertThat(chatJobService.updates("bob", job.getId()).collectList().block(Duration.ofSeconds(5))).isEmpty();
+        assertThat(chatJobService.find("alice", job.getId())).isPresent();
+
+        release.countDown();
+        assertThat(awaitDone(job).getStatus()).isEqualTo(ChatJob.Status.COMPLETED);
+    }
+
+    @Test
+    void updatesPublishTransitionsUntilDone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(llmService.toolChatOrThrow(any(), any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return "answer";
+        });
+        ChatJob job = chatJobService.submit("alice", "token", "prompt", null, null);
+
+        CompletableFuture<List<ChatJob>> updates = chatJobService.updates("alice", job.getId())
+                .collectList()
+                .toFuture();
+        release.countDown();
+
+        List<ChatJob> jobs = updates.get(5, TimeUnit.SECONDS);
+        assertThat(jobs).isNotEmpty();
+        assertThat(jobs.get(jobs.size() - 1).getStatus()).isEqualTo(ChatJob.Status.COMPLETED);
+        assertThat(jobs.get(jobs.size() - 1).getResult()).isEqualTo("answer");
+
+        assertThat(chatJobService.updates("alice", job.getId()).collectList().block(Duration.ofSeconds(5)))
+                .extracting(ChatJob::getStatus)
+                .containsExactly(ChatJob.Status.COMPLETED);
+    }
+
+    private ChatJob awaitDone(ChatJob job) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            ChatJob current = chatJobStore.find(job.getId()).orElseThrow();
+            if (current.isDone()) {
+                return current;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return fail("Job " + job.getId() + " did not finish");
+    }
+}
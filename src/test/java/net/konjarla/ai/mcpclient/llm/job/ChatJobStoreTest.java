@@ -0,0 +1,95 @@
+package net.konjarla.ai.mcpclient.llm.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.konjarla.ai.mcpclient.llm.model.ChatJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatJobStoreTest {
+    @TempDir
+    Path dir;
+
+    private ChatJobStore chatJobStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        chatJobStore = new ChatJobStore(new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(chatJobStore, "storeDir", dir);
+        ReflectionTestUtils.setField(chatJobStore, "ttl", Duration.ofHours(1));
+        chatJobStore.init();
+    }
+
+    @Test
+    void updateStoresChangedJob() {
+        ChatJob job = save();
+
+        Optional<ChatJob> updated = chatJobStore.update(job.getId(),
+                current -> current.toBuilder().status(ChatJob.Status.RUNNING).build());
+
+        assertThat(updated).map(ChatJob::getStatus).contains(ChatJob.Status.RUNNING);
+        assertThat(chatJobStore.find(job.getId())).map(ChatJob::getStatus).contains(ChatJob.Status.RUNNING);
+        assertThat(chatJobStore.find(job.getId())).map(ChatJob::getOwner).contains("alice");
+    }
+
+    @Test
+    void updateLeavesJobUnchangedWhenUpdaterReturnsNull() {
+        ChatJob job = save();
+
+        assertThat(chatJobStore.update(job.getId(), current -> null)).isEmpty();
+
+        assertThat(chatJobStore.find(job.getId())).map(ChatJob::getStatus).contains(ChatJob.Status.PENDING);
+    }
+
+    @Test
+    void updateOfUnknownJobIsEmpty() {
+        assertThat(chatJobStore.update(UUID.randomUUID().toString(),
+                current -> current.toBuilder().status(ChatJob.Status.RUNNING).build())).isEmpty();
+        assertThat(chatJobStore.find("../" + UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws InterruptedException {
+        ChatJob job = save();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    chatJobStore.update(job.getId(), current -> current.toBuilder()
+                            .result((current.getResult() == null ? "" : current.getResult()) + "x")
+                            .build());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(chatJobStore.find(job.getId())).map(ChatJob::getResult).map(String::length).contains(200);
+    }
+
+    private ChatJob save() {
+        ChatJob job = ChatJob.builder()
+                .id(UUID.randomUUID().toString())
+                .owner("alice")
+                .status(ChatJob.Status.PENDING)
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build();
+        chatJobStore.save(job);
+        return job;
+    }
+}
@@ -0,0 +1,99 @@
+package net.konjarla.ai.mcpclient.llm.request;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmRequestRegistryTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LlmRequestRegistry llmRequestRegistry = new LlmRequestRegistry(meterRegistry);
+
+    @Test
+    void cancelCompletesRequestOfSameOwner() {
+        AtomicBoolean completed = track("alice", "1");
+
+        assertThat(llmRequestRegistry.cancel("alice", "1")).isTrue();
+
+        assertThat(completed).isTrue();
+        assertThat(cancelled("explicit")).isEqualTo(1);
+        assertThat(llmRequestRegistry.cancel("alice", "1")).isFalse();
+    }
+
+    @Test
+    void cancelDoesNotReachRequestOfOtherOwner() {
+        AtomicBoolean completed = track("alice", "1");
+
+        assertThat(llmRequestRegistry.cancel("bob", "1")).isFalse();
+        assertThat(llmRequestRegistry.cancel(null, "1")).isFalse();
+
+        assertThat(completed).isFalse();
+        assertThat(cancelled("explicit")).isZero();
+    }
+
+    @Test
+    void newRequestWithSameIdSupersedesOnlyRequestOfSameOwner() {
+        AtomicBoolean first = track("alice", "1");
+        AtomicBoolean otherOwner = track("bob", "1");
+
+        AtomicBoolean second = track("alice", "1");
+
+        assertThat(first).isTrue();
+        assertThat(otherOwner).isFalse();
+        assertThat(second).isFalse();
+        assertThat(cancelled("superseded")).isEqualTo(1);
+        assertThat(llmRequestRegistry.cancel("alice", "1")).isTrue();
+        assertThat(second).isTrue();
+    }
+
+    @Test
+    void countsClientDisconnect() {
+        Disposable subscription = llmRequestRegistry.track("alice", "1", Mono.never()).subscribe();
+
+        subscription.dispose();
+
+        assertThat(cancelled("client_disconnect")).isEqualTo(1);
+        assertThat(llmRequestRegistry.cancel("alice", "1")).isFalse();
+    }
+
+    @Test
+    void completedRequestIsNoLongerTracked() {
+        List<String> values = new ArrayList<>();
+        llmRequestRegistry.track("alice", "1", Flux.just("a", "b")).subscribe(values::add);
+
+        assertThat(values).containsExactly("a", "b");
+        assertThat(llmRequestRegistry.cancel("alice", "1")).isFalse();
+        assertThat(meterRegistry.find("llm.requests.cancelled").counters()).isEmpty();
+    }
+
+    @Test
+    void reportsCancellationsToListener() {
+        List<String> reasons = new ArrayList<>();
+        LlmRequestRegistry registry = new LlmRequestRegistry(reasons::add);
+        registry.track("alice", "1", Flux.never()).subscribe();
+        registry.track("alice", "1", Flux.never()).subscribe();
+        registry.cancel("alice", "1");
+
+        assertThat(reasons).containsExactly("superseded", "explicit");
+        assertThat(meterRegistry.find("llm.requests.cancelled").counters()).isEmpty();
+    }
+
+    private AtomicBoolean track(String owner, String requestId) {
+        AtomicBoolean completed = new AtomicBoolean();
+        llmRequestRegistry.track(owner, requestId, Flux.never()).subscribe(value -> {
+        }, error -> {
+        }, () -> completed.set(true));
+        return completed;
+    }
+
+    private double cancelled(String reason) {
+        return meterRegistry.counter("llm.requests.cancelled", "reason", reason).count();
+    }
+}